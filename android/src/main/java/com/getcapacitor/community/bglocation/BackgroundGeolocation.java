@@ -15,6 +15,7 @@ import android.util.Log;
 
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.NativePlugin;
 import com.getcapacitor.Plugin;
@@ -36,6 +37,9 @@ public class BackgroundGeolocation extends Plugin {
   // The BroadcastReceiver used to listen from broadcasts from the service.
   private GeolocationReceiver receiver;
 
+  // A reference to the service, available while it is bound.
+  private LocationUpdatesService mService = null;
+
   // Tracks the bound state of the service.
   private boolean mBound = false;
   private boolean initialized = false;
@@ -51,6 +55,7 @@ public class BackgroundGeolocation extends Plugin {
 
     @Override
     public void onServiceConnected(ComponentName name, IBinder service) {
+      mService = ((LocationUpdatesService.LocalBinder) service).getService();
       LocalBroadcastManager
         .getInstance(getContext())
         .registerReceiver(
@@ -65,6 +70,8 @@ public class BackgroundGeolocation extends Plugin {
       LocalBroadcastManager
         .getInstance(getContext())
         .unregisterReceiver(receiver);
+      mService = null;
+      mBound = false;
     }
   };
 
@@ -169,6 +176,8 @@ public class BackgroundGeolocation extends Plugin {
 
         ret.put("provider", location.getProvider());
         ret.put("time", location.getTime());
+        ret.put("cached", intent.getBooleanExtra(LocationUpdatesService.EXTRA_CACHED, false));
+        ret.put("predicted", intent.getBooleanExtra(LocationUpdatesService.EXTRA_PREDICTED, false));
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
           ret.put("altitudeAccuracy", location.getVerticalAccuracyMeters());
@@ -225,6 +234,16 @@ public class BackgroundGeolocation extends Plugin {
       configIntent.putExtra("smallIcon", getContext().getResources().getIdentifier(call.getString("smallIcon"), "drawable", getContext().getApplicationContext().getPackageName()));
     if (call.hasOption("requestedAccuracy"))
       configIntent.putExtra("requestedAccuracy", call.getInt("requestedAccuracy"));
+    if (call.hasOption("processingQueueSize"))
+      configIntent.putExtra("processingQueueSize", call.getInt("processingQueueSize"));
+    if (call.hasOption("processingQueuePolicy"))
+      configIntent.putExtra("processingQueuePolicy", call.getString("processingQueuePolicy"));
+    if (call.hasOption("coverageZoom"))
+      configIntent.putExtra("coverageZoom", call.getInt("coverageZoom"));
+    if (call.hasOption("predictionInterval"))
+      configIntent.putExtra("predictionInterval", call.getInt("predictionInterval"));
+    if (call.hasOption("predictionStepHint"))
+      configIntent.putExtra("predictionStepHint", call.getBoolean("predictionStepHint"));
     getContext().startService(configIntent);
 
     // Bind to the service.
@@ -320,4 +339,60 @@ public class BackgroundGeolocation extends Plugin {
 
     call.success();
   }
+
+  @PluginMethod
+  public void getCoverageTiles(PluginCall call) {
+    if (!initialized || mService == null) {
+      call.error("Plugin in not initialized, try to call initialize() first.");
+      return;
+    }
+
+    CoverageAggregator coverage = mService.getCoverage();
+    if (coverage == null) {
+      call.error("Coverage is not enabled, set coverageZoom in initialize() first.");
+      return;
+    }
+
+    int zoom = call.getInt("zoom", coverage.getZoom());
+    if (zoom < CoverageAggregator.MIN_ZOOM || zoom > coverage.getZoom()) {
+      call.error("Zoom must be between " + CoverageAggregator.MIN_ZOOM + " and " + coverage.getZoom() + ".");
+      return;
+    }
+
+    CoverageAggregator.CellMap cells = coverage.snapshot(zoom);
+    JSArray tiles = new JSArray();
+    for (int i = 0; i < cells.capacity(); i++) {
+      if (cells.isEmpty(i))
+        continue;
+
+      long key = cells.keyAt(i);
+
+      JSObject tile = new JSObject();
+      tile.put("quadkey", CoverageAggregator.toQuadKeyString(key, zoom));
+      tile.put("zoom", zoom);
+      tile.put("x", CoverageAggregator.tileX(key, zoom));
+      tile.put("y", CoverageAggregator.tileY(key, zoom));
+      tile.put("visits", cells.visitsAt(i));
+      tile.put("dwellTime", cells.dwellAt(i));
+      tiles.put(tile);
+    }
+
+    JSObject ret = new JSObject();
+    ret.put("tiles", tiles);
+    call.success(ret);
+  }
+
+  @PluginMethod
+  public void clearCoverageTiles(PluginCall call) {
+    if (!initialized || mService == null) {
+      call.error("Plugin in not initialized, try to call initialize() first.");
+      return;
+    }
+
+    CoverageAggregator coverage = mService.getCoverage();
+    if (coverage != null)
+      coverage.clear();
+
+    call.success();
+  }
 }
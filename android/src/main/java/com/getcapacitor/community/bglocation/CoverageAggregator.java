@@ -0,0 +1,277 @@
+package com.getcapacitor.community.bglocation;
+
+import java.util.Arrays;
+
+/**
+ * Buckets location fixes into quadkey cells at a fixed zoom, keeping the number of
+ * visits and the dwell time of each cell. Counters live in primitive open-addressing
+ * maps so the aggregation does not allocate per fix.
+ *
+ * Entering a cell is a visit only for the tiles that were actually left: each entry is
+ * recorded with the zoom of the deepest tile shared with the previous cell, so that
+ * rolling up to a lower zoom does not count moves inside a tile as new visits to it.
+ */
+class CoverageAggregator {
+
+  static final int MIN_ZOOM = 1;
+  // Quadkey (2 bits per zoom level) and shared level (5 bits) must fit in an entry key
+  static final int MAX_ZOOM = 29;
+
+  private static final double MAX_LATITUDE = 85.05112878;
+  private static final long NO_CELL = -1L;
+  private static final int LEVEL_BITS = 5;
+  private static final long LEVEL_MASK = (1L << LEVEL_BITS) - 1;
+
+  private final int zoom;
+  // Dwell time by cell
+  private CellMap cells = new CellMap(64);
+  // Visits by cell and shared level (cell << LEVEL_BITS | level)
+  private CellMap entries = new CellMap(64);
+
+  // Cell of the previous fix in the current tracking session
+  private long lastKey = NO_CELL;
+  // Time of the last counted fix, kept across sessions
+  private long lastTime = Long.MIN_VALUE;
+
+  CoverageAggregator(int zoom) {
+    if (zoom < MIN_ZOOM || zoom > MAX_ZOOM) {
+      throw new IllegalArgumentException("Zoom must be between " + MIN_ZOOM + " and " + MAX_ZOOM + ".");
+    }
+    this.zoom = zoom;
+  }
+
+  int getZoom() {
+    return zoom;
+  }
+
+  synchronized void add(double latitude, double longitude, long time) {
+    // Fixes not newer than the last counted one (e.g. a stale last known location) are ignored
+    if (time <= lastTime) {
+      return;
+    }
+
+    long key = toQuadKey(latitude, longitude, zoom);
+
+    if (lastKey != NO_CELL) {
+      // Time spent since the previous fix is dwell time of the cell it was in
+      cells.addDwell(lastKey, time - lastTime);
+    }
+    if (key != lastKey) {
+      entries.addVisit((key << LEVEL_BITS) | sharedLevel(lastKey, key));
+    }
+
+    lastKey = key;
+    lastTime = time;
+  }
+
+  /**
+   * Ends the current tracking session: the gap until the next fix is not counted as dwell time.
+   */
+  synchronized void endSession() {
+    lastKey = NO_CELL;
+  }
+
+  synchronized void clear() {
+    cells = new CellMap(64);
+    entries = new CellMap(64);
+    lastKey = NO_CELL;
+  }
+
+  /**
+   * Returns the cells rolled up to the requested zoom, which cannot be higher than the aggregation one.
+   */
+  synchronized CellMap snapshot(int zoom) {
+    if (zoom < MIN_ZOOM || zoom > this.zoom) {
+      throw new IllegalArgumentException("Zoom must be between " + MIN_ZOOM + " and " + this.zoom + ".");
+    }
+    int shift = 2 * (this.zoom - zoom);
+    CellMap result = new CellMap(cells.size());
+    for (int i = 0; i < entries.capacity(); i++) {
+      long key = entries.keyAt(i);
+      // Only entries coming from outside the tile at this zoom are visits to it
+      if (!entries.isEmpty(i) && (key & LEVEL_MASK) < zoom) {
+        result.merge((key >>> LEVEL_BITS) >>> shift, entries.visitsAt(i), 0);
+      }
+    }
+    for (int i = 0; i < cells.capacity(); i++) {
+      if (!cells.isEmpty(i)) {
+        result.merge(cells.keyAt(i) >>> shift, 0, cells.dwellAt(i));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the zoom of the deepest tile containing both cells (0 when there is no previous cell).
+   */
+  private int sharedLevel(long previousKey, long key) {
+    if (previousKey == NO_CELL) {
+      return 0;
+    }
+    int highestDifferentDigit = (63 - Long.numberOfLeadingZeros(previousKey ^ key)) / 2;
+    return zoom - 1 - highestDifferentDigit;
+  }
+
+  static long toQuadKey(double latitude, double longitude, int zoom) {
+    double lat = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+    double lon = Math.max(-180.0, Math.min(180.0, longitude));
+    long size = 1L << zoom;
+
+    double sinLat = Math.sin(Math.toRadians(lat));
+    double fx = (lon + 180.0) / 360.0;
+    double fy = 0.5 - Math.log((1 + sinLat) / (1 - sinLat)) / (4 * Math.PI);
+    long x = Math.min(size - 1, Math.max(0, (long) Math.floor(fx * size)));
+    long y = Math.min(size - 1, Math.max(0, (long) Math.floor(fy * size)));
+
+    long key = 0;
+    for (int i = zoom - 1; i >= 0; i--) {
+      key = (key << 2) | ((x >>> i) & 1) | (((y >>> i) & 1) << 1);
+    }
+    return key;
+  }
+
+  static long tileX(long quadKey, int zoom) {
+    long x = 0;
+    for (int i = 0; i < zoom; i++) {
+      x |= ((quadKey >>> (2 * i)) & 1) << i;
+    }
+    return x;
+  }
+
+  static long tileY(long quadKey, int zoom) {
+    long y = 0;
+    for (int i = 0; i < zoom; i++) {
+      y |= ((quadKey >>> (2 * i + 1)) & 1) << i;
+    }
+    return y;
+  }
+
+  static String toQuadKeyString(long quadKey, int zoom) {
+    char[] digits = new char[zoom];
+    for (int i = zoom - 1; i >= 0; i--) {
+      digits[i] = (char) ('0' + (quadKey & 3));
+      quadKey >>>= 2;
+    }
+    return new String(digits);
+  }
+
+  /**
+   * Open-addressing (linear probing) map from a key to its visits and dwell time.
+   */
+  static class CellMap {
+
+    private long[] keys;
+    private int[] visits;
+    private long[] dwell;
+    private int size;
+
+    CellMap(int expectedSize) {
+      int capacity = 16;
+      while (capacity * 3 < expectedSize * 4) {
+        capacity <<= 1;
+      }
+      allocate(capacity);
+    }
+
+    int size() {
+      return size;
+    }
+
+    int capacity() {
+      return keys.length;
+    }
+
+    boolean isEmpty(int index) {
+      return keys[index] == NO_CELL;
+    }
+
+    long keyAt(int index) {
+      return keys[index];
+    }
+
+    int visitsAt(int index) {
+      return visits[index];
+    }
+
+    long dwellAt(int index) {
+      return dwell[index];
+    }
+
+    int indexOf(long key) {
+      int mask = keys.length - 1;
+      for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+        if (keys[i] == key) {
+          return i;
+        }
+        if (keys[i] == NO_CELL) {
+          return -1;
+        }
+      }
+    }
+
+    // slot() may grow the arrays, so it has to run before they are dereferenced
+    void addVisit(long key) {
+      int i = slot(key);
+      visits[i]++;
+    }
+
+    void addDwell(long key, long millis) {
+      int i = slot(key);
+      dwell[i] += millis;
+    }
+
+    void merge(long key, int visitCount, long dwellMillis) {
+      int i = slot(key);
+      visits[i] += visitCount;
+      dwell[i] += dwellMillis;
+    }
+
+    private int slot(long key) {
+      int mask = keys.length - 1;
+      int i = hash(key) & mask;
+      while (keys[i] != NO_CELL) {
+        if (keys[i] == key) {
+          return i;
+        }
+        i = (i + 1) & mask;
+      }
+
+      // Keep the load factor under 3/4
+      if ((size + 1) * 4 > keys.length * 3) {
+        grow();
+        return slot(key);
+      }
+      keys[i] = key;
+      size++;
+      return i;
+    }
+
+    private void grow() {
+      long[] oldKeys = keys;
+      int[] oldVisits = visits;
+      long[] oldDwell = dwell;
+
+      allocate(oldKeys.length << 1);
+      for (int j = 0; j < oldKeys.length; j++) {
+        if (oldKeys[j] != NO_CELL) {
+          int i = slot(oldKeys[j]);
+          visits[i] = oldVisits[j];
+          dwell[i] = oldDwell[j];
+        }
+      }
+    }
+
+    private void allocate(int capacity) {
+      keys = new long[capacity];
+      visits = new int[capacity];
+      dwell = new long[capacity];
+      size = 0;
+      Arrays.fill(keys, NO_CELL);
+    }
+
+    private static int hash(long key) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32));
+    }
+  }
+}
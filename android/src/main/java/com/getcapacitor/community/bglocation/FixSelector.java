@@ -0,0 +1,41 @@
+package com.getcapacitor.community.bglocation;
+
+/**
+ * Decides whether a location fix is better than the current best one, weighing its
+ * age against its accuracy. Used while racing the persisted fix, the provider's last
+ * known location and the first live fix on start.
+ */
+class FixSelector {
+
+  // A fix this much newer than the current best one wins regardless of accuracy
+  static final long SIGNIFICANTLY_NEWER = 2 * 60 * 1000;
+  // Meters of accuracy a newer fix may lose and still win
+  static final float SIGNIFICANTLY_LESS_ACCURATE = 200f;
+
+  private FixSelector() {}
+
+  /**
+   * @param time fix time (ms since epoch)
+   * @param accuracy fix accuracy radius in meters, 0 when unknown
+   */
+  static boolean isBetter(long time, float accuracy, long bestTime, float bestAccuracy) {
+    long timeDelta = time - bestTime;
+    if (timeDelta > SIGNIFICANTLY_NEWER) {
+      return true;
+    }
+    if (timeDelta < -SIGNIFICANTLY_NEWER) {
+      return false;
+    }
+
+    // An unknown accuracy is treated as the worst possible one
+    float candidate = accuracy > 0 ? accuracy : Float.MAX_VALUE;
+    float best = bestAccuracy > 0 ? bestAccuracy : Float.MAX_VALUE;
+    float accuracyDelta = candidate - best;
+    boolean newer = timeDelta > 0;
+
+    if (accuracyDelta < 0) {
+      return true;
+    }
+    return newer && accuracyDelta <= SIGNIFICANTLY_LESS_ACCURATE;
+  }
+}
@@ -0,0 +1,163 @@
+package com.getcapacitor.community.bglocation;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the per-fix processing stages away from the provider callback thread.
+ * A single worker keeps fixes in order, the queue is bounded and the policy
+ * decides what happens when fixes arrive faster than they can be processed.
+ */
+class LocationProcessor {
+
+  enum QueuePolicy {
+    // Drop the oldest queued fix to make room for the new one (default).
+    DROP_OLDEST("dropOldest"),
+    // Drop the incoming fix and keep the queued ones.
+    DROP_NEWEST("dropNewest"),
+    // Process the incoming fix on the submitting thread.
+    CALLER_RUNS("callerRuns");
+
+    private final String value;
+
+    QueuePolicy(String value) {
+      this.value = value;
+    }
+
+    static QueuePolicy fromString(String value, QueuePolicy fallback) {
+      if (value != null) {
+        for (QueuePolicy policy : values()) {
+          if (policy.value.equals(value)) {
+            return policy;
+          }
+        }
+      }
+      return fallback;
+    }
+  }
+
+  static final int DEFAULT_QUEUE_SIZE = 16;
+  static final QueuePolicy DEFAULT_QUEUE_POLICY = QueuePolicy.DROP_OLDEST;
+
+  private final ThreadPoolExecutor executor;
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  LocationProcessor(int queueSize, QueuePolicy queuePolicy) {
+    this.executor = new ThreadPoolExecutor(
+      1,
+      1,
+      0L,
+      TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)),
+      new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "LocationProcessor");
+          thread.setPriority(Thread.NORM_PRIORITY - 1);
+          return thread;
+        }
+      },
+      createRejectionHandler(queuePolicy)
+    );
+    // submitBarrier() queues directly, so the worker has to be there already
+    this.executor.prestartAllCoreThreads();
+  }
+
+  long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  void submit(Runnable stage) {
+    if (executor.isShutdown()) {
+      return;
+    }
+    executor.execute(stage);
+  }
+
+  /**
+   * Queues a task that runs after every fix submitted before it and is never dropped:
+   * when the queue is full the oldest pending fix makes room for it.
+   */
+  void submitBarrier(Runnable task) {
+    if (executor.isShutdown()) {
+      return;
+    }
+    Barrier barrier = new Barrier(task);
+    BlockingQueue<Runnable> queue = executor.getQueue();
+    while (!queue.offer(barrier)) {
+      if (!dropOldestFix(queue)) {
+        // Only barriers are queued: wait for the worker to take one
+        Thread.yield();
+      }
+    }
+  }
+
+  /**
+   * Stops accepting new fixes; the ones already queued are still processed.
+   */
+  void shutdown() {
+    executor.shutdown();
+  }
+
+  boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return executor.awaitTermination(timeout, unit);
+  }
+
+  private RejectedExecutionHandler createRejectionHandler(QueuePolicy policy) {
+    switch (policy) {
+      case DROP_NEWEST:
+        return new RejectedExecutionHandler() {
+          @Override
+          public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+            droppedCount.incrementAndGet();
+          }
+        };
+      case CALLER_RUNS:
+        return new ThreadPoolExecutor.CallerRunsPolicy();
+      case DROP_OLDEST:
+      default:
+        return new RejectedExecutionHandler() {
+          @Override
+          public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+            if (e.isShutdown()) {
+              return;
+            }
+            if (dropOldestFix(e.getQueue())) {
+              e.execute(r);
+            } else {
+              droppedCount.incrementAndGet();
+            }
+          }
+        };
+    }
+  }
+
+  private boolean dropOldestFix(BlockingQueue<Runnable> queue) {
+    for (Runnable queued : queue) {
+      if (!(queued instanceof Barrier) && queue.remove(queued)) {
+        droppedCount.incrementAndGet();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static class Barrier implements Runnable {
+
+    private final Runnable task;
+
+    Barrier(Runnable task) {
+      this.task = task;
+    }
+
+    @Override
+    public void run() {
+      task.run();
+    }
+  }
+}
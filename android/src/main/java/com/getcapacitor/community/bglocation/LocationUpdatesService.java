@@ -8,13 +8,17 @@ import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
 import android.location.Location;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
-import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.core.app.NotificationCompat;
@@ -29,13 +33,25 @@ import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
 
+import java.util.concurrent.Executor;
+
 public class LocationUpdatesService extends Service {
   private static final String PACKAGE_NAME = "com.getcapacitor.community.bglocation";
   private static final String TAG = LocationUpdatesService.class.getSimpleName();
   private static final String CHANNEL_ID = "bg_location_channel";
   private static final int NOTIFICATION_ID = 0xFEDEC;
 
+  // Where a location handed to the processing pipeline comes from
+  private static final int SOURCE_LIVE = 0;
+  private static final int SOURCE_CACHED = 1;
+  private static final int SOURCE_PREDICTED = 2;
+
+  // Predictions stop when no real fix arrives for this many update intervals
+  private static final int PREDICTION_MAX_INTERVALS = 2;
+
   static final String EXTRA_LOCATION = PACKAGE_NAME + ".location";
+  static final String EXTRA_CACHED = PACKAGE_NAME + ".cached";
+  static final String EXTRA_PREDICTED = PACKAGE_NAME + ".predicted";
   static final String ACTION_BROADCAST = PACKAGE_NAME + ".broadcast";
   static final String ACTION_START = PACKAGE_NAME + ".startservice";
   static final String ACTION_STOP = PACKAGE_NAME + ".stopservice";
@@ -50,7 +66,24 @@ public class LocationUpdatesService extends Service {
   private FusedLocationProviderClient mFusedLocationClient;
   private LocationCallback mLocationCallback;
   private Handler mServiceHandler;
+  // Replaced on the main thread when reconfigured, used on the service thread
+  private volatile LocationProcessor mProcessor;
+  private volatile CoverageAggregator mCoverage;
+  // Last live fix and warm start state, only touched on the service thread
   private Location mLocation;
+  private Location mWarmLocation;
+  // Last persisted fix, used by the processing worker (a new one after reconfiguring)
+  private volatile Location mPersistedLocation;
+  // Prediction state, only touched on the service thread
+  private final PositionPredictor mPredictor = new PositionPredictor();
+  private Location mPredictionOrigin;
+  private SensorManager mSensorManager;
+  private SensorEventListener mStepListener;
+  private Runnable mPredictionTick;
+  // Settings of the running predictions, copied when they start
+  private boolean mPredicting;
+  private long mPredictionInterval;
+  private long mPredictionMaxAge;
 
   // Configuration values
   private int updateInterval = 10000;
@@ -59,6 +92,11 @@ public class LocationUpdatesService extends Service {
   private String mainActivityName;
   private int smallIconResourceID = R.drawable.ic_baseline_location_on_24;
   private int requestedAccuracy = LocationRequest.PRIORITY_HIGH_ACCURACY;
+  private int processingQueueSize = LocationProcessor.DEFAULT_QUEUE_SIZE;
+  private LocationProcessor.QueuePolicy processingQueuePolicy = LocationProcessor.DEFAULT_QUEUE_POLICY;
+  private int coverageZoom = 0;
+  private int predictionInterval = 0;
+  private boolean predictionStepHint = false;
 
   public LocationUpdatesService() {
     notificationTitle = "App is running.";
@@ -74,14 +112,39 @@ public class LocationUpdatesService extends Service {
       @Override
       public void onLocationResult(LocationResult locationResult) {
         super.onLocationResult(locationResult);
-        onNewLocation(locationResult.getLastLocation());
+        mLocation = locationResult.getLastLocation();
+        updatePrediction(mLocation);
+        onNewLocation(mLocation, SOURCE_LIVE);
       }
     };
 
     HandlerThread handlerThread = new HandlerThread(TAG);
     handlerThread.start();
     mServiceHandler = new Handler(handlerThread.getLooper());
+    mProcessor = new LocationProcessor(processingQueueSize, processingQueuePolicy);
     mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+    mSensorManager = (SensorManager) getSystemService(SENSOR_SERVICE);
+
+    mPredictionTick = new Runnable() {
+      @Override
+      public void run() {
+        if (!mPredicting) {
+          return;
+        }
+        emitPrediction();
+        mServiceHandler.postDelayed(this, mPredictionInterval);
+      }
+    };
+
+    mStepListener = new SensorEventListener() {
+      @Override
+      public void onSensorChanged(SensorEvent event) {
+        mPredictor.onStep(SystemClock.elapsedRealtime());
+      }
+
+      @Override
+      public void onAccuracyChanged(Sensor sensor, int accuracy) {}
+    };
 
     // Android O requires a Notification Channel.
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -144,6 +207,16 @@ public class LocationUpdatesService extends Service {
             String newText = intent.getStringExtra("notificationText");
             int newSmallIcon = intent.getIntExtra("smallIcon", smallIconResourceID);
             int newAccuracy = intent.getIntExtra("requestedAccuracy", requestedAccuracy);
+            int newQueueSize = intent.getIntExtra("processingQueueSize", processingQueueSize);
+            int newCoverageZoom = intent.getIntExtra("coverageZoom", coverageZoom);
+            int newPredictionInterval = intent.getIntExtra("predictionInterval", predictionInterval);
+            boolean newPredictionStepHint = intent.getBooleanExtra("predictionStepHint", predictionStepHint);
+            boolean updatePrediction = newPredictionInterval != predictionInterval ||
+                                       newPredictionStepHint != predictionStepHint;
+            LocationProcessor.QueuePolicy newQueuePolicy = LocationProcessor.QueuePolicy.fromString(
+              intent.getStringExtra("processingQueuePolicy"),
+              processingQueuePolicy
+            );
 
             // Verifying what changes
             boolean toRestart = newInterval != updateInterval || newAccuracy != requestedAccuracy;
@@ -159,6 +232,28 @@ public class LocationUpdatesService extends Service {
             if (newSmallIcon > 0)
               smallIconResourceID = newSmallIcon;
 
+            // Queue size and policy are fixed per executor: swap it, letting the old one drain
+            if (newQueueSize != processingQueueSize || newQueuePolicy != processingQueuePolicy) {
+              processingQueueSize = newQueueSize;
+              processingQueuePolicy = newQueuePolicy;
+              mProcessor.shutdown();
+              mProcessor = new LocationProcessor(processingQueueSize, processingQueuePolicy);
+            }
+
+            // Coverage cells can't be converted between zoom levels: start over
+            if (newCoverageZoom != coverageZoom) {
+              coverageZoom = newCoverageZoom;
+              mCoverage = coverageZoom > 0
+                ? new CoverageAggregator(Math.min(coverageZoom, CoverageAggregator.MAX_ZOOM))
+                : null;
+            }
+
+            predictionInterval = newPredictionInterval;
+            predictionStepHint = newPredictionStepHint;
+            if (updatePrediction && !toRestart && Utils.isRequestingLocation(this)) {
+              startPrediction();
+            }
+
             // Restarting service with new options
             if (toRestart && Utils.isRequestingLocation(this)) {
               boolean foreground = serviceIsRunningInForeground(this);
@@ -204,12 +299,16 @@ public class LocationUpdatesService extends Service {
   @Override
   public void onDestroy() {
     mServiceHandler.removeCallbacksAndMessages(null);
+    mSensorManager.unregisterListener(mStepListener);
+    mServiceHandler.getLooper().quitSafely();
+    mProcessor.shutdown();
     stopForeground(true);
     stopSelf();
   }
 
   public void requestLocationUpdates() {
-    getLastLocation();
+    warmStart();
+    startPrediction();
 
     Log.d(TAG, "Requesting location updates");
     Utils.setRequestingLocation(this);
@@ -217,7 +316,8 @@ public class LocationUpdatesService extends Service {
       new Intent(getApplicationContext(), LocationUpdatesService.class)
     );
     try {
-      mFusedLocationClient.requestLocationUpdates(mLocationRequest, mLocationCallback, Looper.myLooper());
+      // Callbacks are delivered on the service thread, not on the main one
+      mFusedLocationClient.requestLocationUpdates(mLocationRequest, mLocationCallback, mServiceHandler.getLooper());
     } catch (SecurityException unlikely) {
       Utils.unsetRequestingLocation(this);
       Log.e(TAG, "Lost location permission. Could not request updates. " + unlikely);
@@ -228,6 +328,8 @@ public class LocationUpdatesService extends Service {
     Log.i(TAG, "Removing location updates");
     try {
       mFusedLocationClient.removeLocationUpdates(mLocationCallback);
+      stopPrediction();
+      endCoverageSession();
       Utils.unsetRequestingLocation(this);
       stopSelf();
     } catch (SecurityException unlikely) {
@@ -269,13 +371,18 @@ public class LocationUpdatesService extends Service {
       mFusedLocationClient
         .getLastLocation()
         .addOnCompleteListener(
+          new Executor() {
+            @Override
+            public void execute(Runnable command) {
+              mServiceHandler.post(command);
+            }
+          },
           new OnCompleteListener<Location>() {
 
             @Override
             public void onComplete(@NonNull Task<Location> task) {
               if (task.isSuccessful() && task.getResult() != null) {
-                mLocation = task.getResult();
-                onNewLocation(mLocation);
+                offerCachedLocation(task.getResult());
               } else {
                 Log.w(TAG, "Failed to get location.");
               }
@@ -287,17 +394,235 @@ public class LocationUpdatesService extends Service {
     }
   }
 
-  private void onNewLocation(Location location) {
-    Log.d(TAG, "New location: " + location);
+  /**
+   * Emits the persisted fix right away, then races it against the provider's last known
+   * location until the first live fix arrives. Once this service has a live fix (e.g. on a
+   * second start or on a restart with new options) there is nothing to warm up: a cached
+   * fix would be older than what was already emitted.
+   */
+  private void warmStart() {
+    mServiceHandler.post(
+      new Runnable() {
+        @Override
+        public void run() {
+          if (mLocation != null) {
+            return;
+          }
+          mWarmLocation = null;
+
+          Location persisted = Utils.getLastLocation(LocationUpdatesService.this);
+          if (persisted != null) {
+            offerCachedLocation(persisted);
+          }
+          getLastLocation();
+        }
+      }
+    );
+  }
+
+  // Called on the service thread: emits a cached fix only if it beats the ones already emitted.
+  private void offerCachedLocation(Location location) {
+    if (mLocation != null) {
+      return;
+    }
+    if (
+      mWarmLocation != null &&
+      !FixSelector.isBetter(
+        location.getTime(),
+        location.getAccuracy(),
+        mWarmLocation.getTime(),
+        mWarmLocation.getAccuracy()
+      )
+    ) {
+      return;
+    }
+    mWarmLocation = location;
+    onNewLocation(location, SOURCE_CACHED);
+  }
+
+  /**
+   * Starts emitting predicted positions every predictionInterval ms, if enabled.
+   * Start, stop and ticks all run on the service thread, so a tick can never outlive a stop
+   * nor run twice per interval.
+   */
+  private void startPrediction() {
+    final long interval = predictionInterval;
+    final long maxAge = (long) updateInterval * PREDICTION_MAX_INTERVALS;
+    final boolean stepHint = predictionStepHint;
+
+    mServiceHandler.post(
+      new Runnable() {
+        @Override
+        public void run() {
+          cancelPrediction();
+          if (interval <= 0) {
+            return;
+          }
+
+          mPredictor.reset();
+          mPredictionOrigin = null;
+          mPredicting = true;
+          mPredictionInterval = interval;
+          mPredictionMaxAge = maxAge;
+          mServiceHandler.postDelayed(mPredictionTick, interval);
+
+          if (stepHint) {
+            Sensor stepDetector = mSensorManager.getDefaultSensor(Sensor.TYPE_STEP_DETECTOR);
+            if (stepDetector != null) {
+              mSensorManager.registerListener(mStepListener, stepDetector, SensorManager.SENSOR_DELAY_NORMAL, mServiceHandler);
+            } else {
+              Log.w(TAG, "No step detector available, predicting from location speed only.");
+            }
+          }
+        }
+      }
+    );
+  }
 
+  private void stopPrediction() {
+    mServiceHandler.post(
+      new Runnable() {
+        @Override
+        public void run() {
+          cancelPrediction();
+        }
+      }
+    );
+  }
+
+  // Called on the service thread.
+  private void cancelPrediction() {
+    mPredicting = false;
+    mServiceHandler.removeCallbacks(mPredictionTick);
+    mSensorManager.unregisterListener(mStepListener);
+  }
+
+  // Called on the service thread: a real fix becomes the origin of the next predictions.
+  private void updatePrediction(Location location) {
+    if (!mPredicting) {
+      return;
+    }
+
+    mPredictionOrigin = location;
+    mPredictor.update(
+      location.getLatitude(),
+      location.getLongitude(),
+      location.getAccuracy(),
+      location.getElapsedRealtimeNanos() / 1000000,
+      location.hasSpeed(),
+      location.getSpeed(),
+      location.hasBearing(),
+      location.getBearing()
+    );
+  }
+
+  // Called on the service thread.
+  private void emitPrediction() {
+    long now = SystemClock.elapsedRealtime();
+    if (mPredictionOrigin == null || !mPredictor.canPredict(now, mPredictionMaxAge)) {
+      return;
+    }
+
+    double[] predicted = mPredictor.predict(now);
+    Location location = new Location(mPredictionOrigin);
+    location.setLatitude(predicted[0]);
+    location.setLongitude(predicted[1]);
+    location.setAccuracy((float) predicted[2]);
+    location.setSpeed(mPredictor.speedAt(now));
+    location.setTime(mPredictionOrigin.getTime() + now - mPredictionOrigin.getElapsedRealtimeNanos() / 1000000);
+    location.setElapsedRealtimeNanos(now * 1000000);
+
+    // Predictions are cheap and frequent: they skip the processing queue so they can never
+    // push real fixes out of it.
+    Log.d(TAG, "New predicted location: " + location);
+    broadcastLocation(location, SOURCE_PREDICTED);
+  }
+
+  // Called on the service thread: only hands the fix over to the processing pipeline.
+  private void onNewLocation(final Location location, final int source) {
+    mProcessor.submit(
+      new Runnable() {
+        @Override
+        public void run() {
+          processLocation(location, source);
+        }
+      }
+    );
+  }
+
+  // Called on the processing worker.
+  private void processLocation(Location location, int source) {
+    Log.d(TAG, "New " + (source == SOURCE_CACHED ? "cached " : "") + "location: " + location);
+
+    // Cached fixes were already counted and stored when they were live
+    if (source == SOURCE_LIVE) {
+      persistLocation(location);
+
+      CoverageAggregator coverage = mCoverage;
+      if (coverage != null) {
+        coverage.add(location.getLatitude(), location.getLongitude(), location.getTime());
+      }
+    }
+
+    broadcastLocation(location, source);
+  }
+
+  private void broadcastLocation(Location location, int source) {
     // Notify anyone listening for broadcasts about the new location.
     Intent intent = new Intent(ACTION_BROADCAST);
     intent.putExtra(EXTRA_LOCATION, location);
+    intent.putExtra(EXTRA_CACHED, source == SOURCE_CACHED);
+    intent.putExtra(EXTRA_PREDICTED, source == SOURCE_PREDICTED);
     LocalBroadcastManager
       .getInstance(getApplicationContext())
       .sendBroadcast(intent);
   }
 
+  // Called on the processing worker: stores the fix only if it beats the stored one.
+  private void persistLocation(Location location) {
+    if (mPersistedLocation == null) {
+      mPersistedLocation = Utils.getLastLocation(this);
+    }
+    if (
+      mPersistedLocation != null &&
+      !FixSelector.isBetter(
+        location.getTime(),
+        location.getAccuracy(),
+        mPersistedLocation.getTime(),
+        mPersistedLocation.getAccuracy()
+      )
+    ) {
+      return;
+    }
+    mPersistedLocation = location;
+    Utils.setLastLocation(this, location);
+  }
+
+  /**
+   * Ends the coverage session after every fix received before the stop: the FLP callbacks
+   * already posted to the service thread and the fixes already waiting in the processor.
+   */
+  private void endCoverageSession() {
+    mServiceHandler.post(
+      new Runnable() {
+        @Override
+        public void run() {
+          mProcessor.submitBarrier(
+            new Runnable() {
+              @Override
+              public void run() {
+                CoverageAggregator coverage = mCoverage;
+                if (coverage != null) {
+                  coverage.endSession();
+                }
+              }
+            }
+          );
+        }
+      }
+    );
+  }
+
   private void createLocationRequest() {
     mLocationRequest = new LocationRequest();
     mLocationRequest.setInterval(updateInterval);
@@ -305,6 +630,13 @@ public class LocationUpdatesService extends Service {
     mLocationRequest.setPriority(requestedAccuracy);
   }
 
+  /**
+   * Returns the coverage aggregator, or null when coverage is not enabled.
+   */
+  CoverageAggregator getCoverage() {
+    return mCoverage;
+  }
+
   public class LocalBinder extends Binder {
     LocationUpdatesService getService() {
       return LocationUpdatesService.this;
@@ -0,0 +1,152 @@
+package com.getcapacitor.community.bglocation;
+
+/**
+ * Dead reckoning between location fixes: projects the last fix along its bearing
+ * at its speed (or at the walking speed estimated from steps, when step hints are given
+ * and the last fix is at walking pace).
+ * All times are on the same monotonic clock, in milliseconds.
+ */
+class PositionPredictor {
+
+  static final double EARTH_RADIUS = 6371008.8;
+  // Below this speed (m/s) the device is considered still and nothing is predicted
+  static final float MIN_SPEED = 0.3f;
+  // Window used to turn steps into a walking speed
+  static final long STEP_WINDOW = 4000;
+  static final float STEP_LENGTH = 0.75f;
+  // Above this speed (m/s) the user is not walking and steps are ignored
+  static final float MAX_WALKING_SPEED = 3f;
+  // Accuracy lost (meters) for each second of prediction
+  static final float ACCURACY_GROWTH = 1f;
+
+  private static final int MAX_STEPS = 32;
+
+  private final long[] stepTimes = new long[MAX_STEPS];
+  private int stepCount = 0;
+
+  private boolean hasFix = false;
+  private double latitude;
+  private double longitude;
+  private float accuracy;
+  private float speed;
+  private float bearing;
+  private boolean hasMotion;
+  private long time;
+
+  void reset() {
+    hasFix = false;
+    stepCount = 0;
+  }
+
+  /**
+   * Sets a new real fix as the prediction origin. When the fix lacks speed or bearing they
+   * are derived from the previous fix.
+   */
+  void update(
+    double latitude,
+    double longitude,
+    float accuracy,
+    long time,
+    boolean hasSpeed,
+    float speed,
+    boolean hasBearing,
+    float bearing
+  ) {
+    boolean motion = hasSpeed && hasBearing;
+
+    if (!motion && hasFix && time > this.time) {
+      double distance = distance(this.latitude, this.longitude, latitude, longitude);
+      if (!hasSpeed) {
+        speed = (float) (distance * 1000.0 / (time - this.time));
+      }
+      if (!hasBearing && distance > 0) {
+        bearing = (float) bearing(this.latitude, this.longitude, latitude, longitude);
+        hasBearing = true;
+      }
+      motion = hasBearing;
+    }
+
+    this.hasFix = true;
+    this.latitude = latitude;
+    this.longitude = longitude;
+    this.accuracy = accuracy;
+    this.speed = speed;
+    this.bearing = bearing;
+    this.hasMotion = motion;
+    this.time = time;
+  }
+
+  void onStep(long time) {
+    stepTimes[stepCount % MAX_STEPS] = time;
+    stepCount++;
+  }
+
+  /**
+   * Current speed estimate: from steps when step hints were given and the last fix is at
+   * walking pace (no recent steps then means the user stopped), from the last fix otherwise.
+   */
+  float speedAt(long now) {
+    if (stepCount == 0 || speed > MAX_WALKING_SPEED) {
+      return speed;
+    }
+    int steps = 0;
+    for (int i = 0; i < Math.min(stepCount, MAX_STEPS); i++) {
+      if (now - stepTimes[i] <= STEP_WINDOW && now >= stepTimes[i]) {
+        steps++;
+      }
+    }
+    return steps * STEP_LENGTH * 1000f / STEP_WINDOW;
+  }
+
+  /**
+   * @param maxAge how long after the last fix predictions are still emitted
+   */
+  boolean canPredict(long now, long maxAge) {
+    return hasFix && hasMotion && now > time && now - time <= maxAge && speedAt(now) >= MIN_SPEED;
+  }
+
+  /**
+   * Returns the predicted { latitude, longitude, accuracy } at the given time.
+   */
+  double[] predict(long now) {
+    double seconds = (now - time) / 1000.0;
+    double[] position = project(latitude, longitude, bearing, speedAt(now) * seconds);
+    return new double[] { position[0], position[1], accuracy + ACCURACY_GROWTH * seconds };
+  }
+
+  /**
+   * Destination point along a great circle from a start point, bearing (degrees) and distance (meters).
+   */
+  static double[] project(double latitude, double longitude, double bearing, double distance) {
+    double delta = distance / EARTH_RADIUS;
+    double theta = Math.toRadians(bearing);
+    double phi1 = Math.toRadians(latitude);
+    double lambda1 = Math.toRadians(longitude);
+
+    double sinPhi2 = Math.sin(phi1) * Math.cos(delta) + Math.cos(phi1) * Math.sin(delta) * Math.cos(theta);
+    double phi2 = Math.asin(sinPhi2);
+    double lambda2 =
+      lambda1 + Math.atan2(Math.sin(theta) * Math.sin(delta) * Math.cos(phi1), Math.cos(delta) - Math.sin(phi1) * sinPhi2);
+
+    double lon = (Math.toDegrees(lambda2) + 540) % 360 - 180;
+    return new double[] { Math.toDegrees(phi2), lon };
+  }
+
+  static double distance(double lat1, double lon1, double lat2, double lon2) {
+    double dPhi = Math.toRadians(lat2 - lat1);
+    double dLambda = Math.toRadians(lon2 - lon1);
+    double a =
+      Math.sin(dPhi / 2) * Math.sin(dPhi / 2) +
+      Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLambda / 2) * Math.sin(dLambda / 2);
+    return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  static double bearing(double lat1, double lon1, double lat2, double lon2) {
+    double phi1 = Math.toRadians(lat1);
+    double phi2 = Math.toRadians(lat2);
+    double dLambda = Math.toRadians(lon2 - lon1);
+    double y = Math.sin(dLambda) * Math.cos(phi2);
+    double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * Math.cos(phi2) * Math.cos(dLambda);
+    return (Math.toDegrees(Math.atan2(y, x)) + 360) % 360;
+  }
+}
@@ -2,10 +2,15 @@ package com.getcapacitor.community.bglocation;
 
 import android.app.Activity;
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.Location;
 import android.preference.PreferenceManager;
 
 class Utils {
   public static final String IS_REQUESTING_LOCATION = "is_requesting_location";
+  public static final String LAST_LOCATION = "last_location";
+  // Kept apart from the app's default preferences
+  private static final String LOCATION_PREFERENCES = "com.getcapacitor.community.bglocation.last_location";
 
   public static void setRequestingLocation(Context context) {
     PreferenceManager
@@ -29,6 +34,39 @@ class Utils {
       .getBoolean(IS_REQUESTING_LOCATION, false);
   }
 
+  public static void setLastLocation(Context context, Location location) {
+    context
+      .getSharedPreferences(LOCATION_PREFERENCES, Context.MODE_PRIVATE)
+      .edit()
+      .putBoolean(LAST_LOCATION, true)
+      .putLong(LAST_LOCATION + "_latitude", Double.doubleToRawLongBits(location.getLatitude()))
+      .putLong(LAST_LOCATION + "_longitude", Double.doubleToRawLongBits(location.getLongitude()))
+      .putLong(LAST_LOCATION + "_altitude", Double.doubleToRawLongBits(location.getAltitude()))
+      .putFloat(LAST_LOCATION + "_accuracy", location.getAccuracy())
+      .putFloat(LAST_LOCATION + "_bearing", location.getBearing())
+      .putFloat(LAST_LOCATION + "_speed", location.getSpeed())
+      .putLong(LAST_LOCATION + "_time", location.getTime())
+      .putString(LAST_LOCATION + "_provider", location.getProvider())
+      .apply();
+  }
+
+  public static Location getLastLocation(Context context) {
+    SharedPreferences prefs = context.getSharedPreferences(LOCATION_PREFERENCES, Context.MODE_PRIVATE);
+    if (!prefs.getBoolean(LAST_LOCATION, false)) {
+      return null;
+    }
+
+    Location location = new Location(prefs.getString(LAST_LOCATION + "_provider", "cache"));
+    location.setLatitude(Double.longBitsToDouble(prefs.getLong(LAST_LOCATION + "_latitude", 0)));
+    location.setLongitude(Double.longBitsToDouble(prefs.getLong(LAST_LOCATION + "_longitude", 0)));
+    location.setAltitude(Double.longBitsToDouble(prefs.getLong(LAST_LOCATION + "_altitude", 0)));
+    location.setAccuracy(prefs.getFloat(LAST_LOCATION + "_accuracy", 0));
+    location.setBearing(prefs.getFloat(LAST_LOCATION + "_bearing", 0));
+    location.setSpeed(prefs.getFloat(LAST_LOCATION + "_speed", 0));
+    location.setTime(prefs.getLong(LAST_LOCATION + "_time", 0));
+    return location;
+  }
+
   // This is not used anymore
   // public static int getResourceId(Context context, String pVariableName, String pResourcename, String pPackageName) throws RuntimeException {
   //   try {
@@ -0,0 +1,115 @@
+package com.getcapacitor.community.bglocation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CoverageAggregatorTest {
+
+  @Test
+  public void quadKey_matchesBingTileSystem() {
+    // Seattle at zoom 3 is tile (1, 2) with quadkey "021"
+    long key = CoverageAggregator.toQuadKey(47.6, -122.3, 3);
+
+    assertEquals("021", CoverageAggregator.toQuadKeyString(key, 3));
+    assertEquals(1, CoverageAggregator.tileX(key, 3));
+    assertEquals(2, CoverageAggregator.tileY(key, 3));
+  }
+
+  @Test
+  public void add_countsVisitsAndDwell() {
+    CoverageAggregator aggregator = new CoverageAggregator(16);
+    long home = CoverageAggregator.toQuadKey(45.0, 9.0, 16);
+    long work = CoverageAggregator.toQuadKey(45.1, 9.1, 16);
+
+    aggregator.add(45.0, 9.0, 0);
+    aggregator.add(45.0, 9.0, 10000);
+    aggregator.add(45.1, 9.1, 15000);
+    aggregator.add(45.0, 9.0, 20000);
+
+    CoverageAggregator.CellMap cells = aggregator.snapshot(16);
+    assertEquals(2, cells.size());
+    assertEquals(2, cells.visitsAt(cells.indexOf(home)));
+    assertEquals(15000, cells.dwellAt(cells.indexOf(home)));
+    assertEquals(1, cells.visitsAt(cells.indexOf(work)));
+    assertEquals(5000, cells.dwellAt(cells.indexOf(work)));
+  }
+
+  @Test
+  public void endSession_doesNotCountGapAsDwell() {
+    CoverageAggregator aggregator = new CoverageAggregator(16);
+    long home = CoverageAggregator.toQuadKey(45.0, 9.0, 16);
+
+    aggregator.add(45.0, 9.0, 0);
+    aggregator.endSession();
+    aggregator.add(45.0, 9.0, 3600000);
+
+    CoverageAggregator.CellMap cells = aggregator.snapshot(16);
+    assertEquals(2, cells.visitsAt(cells.indexOf(home)));
+    assertEquals(0, cells.dwellAt(cells.indexOf(home)));
+  }
+
+  @Test
+  public void endSession_ignoresStaleFixOnRestart() {
+    CoverageAggregator aggregator = new CoverageAggregator(16);
+    long home = CoverageAggregator.toQuadKey(45.0, 9.0, 16);
+    long work = CoverageAggregator.toQuadKey(45.1, 9.1, 16);
+
+    aggregator.add(45.0, 9.0, 0);
+    aggregator.add(45.1, 9.1, 10000);
+    aggregator.endSession();
+    // The last known location sent on restart is the fix already counted
+    aggregator.add(45.1, 9.1, 10000);
+    aggregator.add(45.0, 9.0, 3600000);
+
+    CoverageAggregator.CellMap cells = aggregator.snapshot(16);
+    assertEquals(1, cells.visitsAt(cells.indexOf(work)));
+    assertEquals(0, cells.dwellAt(cells.indexOf(work)));
+    assertEquals(2, cells.visitsAt(cells.indexOf(home)));
+    assertEquals(10000, cells.dwellAt(cells.indexOf(home)));
+  }
+
+  @Test
+  public void snapshot_rollsUpToLowerZoom() {
+    CoverageAggregator aggregator = new CoverageAggregator(24);
+
+    // One continuous pass over many distinct cells, also forcing the maps to grow
+    for (int i = 0; i < 1000; i++) {
+      aggregator.add(45.0 + i * 0.0001, 9.0, i * 1000L);
+    }
+
+    CoverageAggregator.CellMap cells = aggregator.snapshot(24);
+    assertEquals(1000, cells.size());
+    for (int i = 0; i < cells.capacity(); i++) {
+      if (!cells.isEmpty(i)) {
+        assertEquals(1, cells.visitsAt(i));
+      }
+    }
+
+    // Moving between cells inside a lower zoom tile is not a new visit to it
+    CoverageAggregator.CellMap rolled = aggregator.snapshot(8);
+    long dwell = 0;
+    for (int i = 0; i < rolled.capacity(); i++) {
+      if (!rolled.isEmpty(i)) {
+        assertEquals(1, rolled.visitsAt(i));
+        dwell += rolled.dwellAt(i);
+      }
+    }
+    assertTrue(rolled.size() <= 2);
+    assertEquals(999000, dwell);
+  }
+
+  @Test
+  public void snapshot_countsReturnsToTile() {
+    CoverageAggregator aggregator = new CoverageAggregator(16);
+    long city = CoverageAggregator.toQuadKey(45.0, 9.0, 8);
+
+    aggregator.add(45.0, 9.0, 0);
+    aggregator.add(45.001, 9.001, 1000);
+    aggregator.add(48.0, 2.0, 2000);
+    aggregator.add(45.0, 9.0, 3000);
+
+    CoverageAggregator.CellMap rolled = aggregator.snapshot(8);
+    assertEquals(2, rolled.visitsAt(rolled.indexOf(city)));
+  }
+}
@@ -0,0 +1,41 @@
+package com.getcapacitor.community.bglocation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class FixSelectorTest {
+
+  private static final long NOW = 1600000000000L;
+
+  @Test
+  public void moreAccurate_wins() {
+    assertTrue(FixSelector.isBetter(NOW - 10000, 5f, NOW, 50f));
+  }
+
+  @Test
+  public void newerAndSlightlyLessAccurate_wins() {
+    assertTrue(FixSelector.isBetter(NOW + 10000, 60f, NOW, 50f));
+  }
+
+  @Test
+  public void newerButMuchLessAccurate_loses() {
+    assertFalse(FixSelector.isBetter(NOW + 10000, 500f, NOW, 50f));
+  }
+
+  @Test
+  public void significantlyNewer_winsRegardlessOfAccuracy() {
+    assertTrue(FixSelector.isBetter(NOW + FixSelector.SIGNIFICANTLY_NEWER + 1, 2000f, NOW, 5f));
+  }
+
+  @Test
+  public void significantlyOlder_losesRegardlessOfAccuracy() {
+    assertFalse(FixSelector.isBetter(NOW - FixSelector.SIGNIFICANTLY_NEWER - 1, 1f, NOW, 500f));
+  }
+
+  @Test
+  public void unknownAccuracy_isWorst() {
+    assertFalse(FixSelector.isBetter(NOW - 1000, 0f, NOW, 50f));
+    assertTrue(FixSelector.isBetter(NOW - 1000, 50f, NOW, 0f));
+  }
+}
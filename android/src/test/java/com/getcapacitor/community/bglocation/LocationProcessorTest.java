@@ -0,0 +1,191 @@
+package com.getcapacitor.community.bglocation;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class LocationProcessorTest {
+
+  private static Runnable blocker(final CountDownLatch started, final CountDownLatch release) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ignored) {}
+      }
+    };
+  }
+
+  private static Runnable recorder(final List<Integer> seen, final int value) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        seen.add(value);
+      }
+    };
+  }
+
+  @Test
+  public void submit_doesNotRunOnCallerThread() throws Exception {
+    LocationProcessor processor = new LocationProcessor(4, LocationProcessor.QueuePolicy.DROP_OLDEST);
+    final Thread caller = Thread.currentThread();
+    final boolean[] onCaller = { true };
+    final CountDownLatch done = new CountDownLatch(1);
+
+    long start = System.nanoTime();
+    processor.submit(
+      new Runnable() {
+        @Override
+        public void run() {
+          onCaller[0] = Thread.currentThread() == caller;
+          try {
+            Thread.sleep(200);
+          } catch (InterruptedException ignored) {}
+          done.countDown();
+        }
+      }
+    );
+    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertTrue("submit blocked the caller for " + elapsedMs + "ms", elapsedMs < 50);
+    assertTrue(done.await(2, TimeUnit.SECONDS));
+    assertFalse(onCaller[0]);
+    processor.shutdown();
+  }
+
+  @Test
+  public void dropOldest_keepsLatestFixes() throws Exception {
+    LocationProcessor processor = new LocationProcessor(2, LocationProcessor.QueuePolicy.DROP_OLDEST);
+    List<Integer> seen = Collections.synchronizedList(new ArrayList<Integer>());
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    processor.submit(blocker(started, release));
+    assertTrue(started.await(2, TimeUnit.SECONDS));
+    for (int i = 1; i <= 4; i++) {
+      processor.submit(recorder(seen, i));
+    }
+    release.countDown();
+    processor.shutdown();
+    assertTrue(processor.awaitTermination(2, TimeUnit.SECONDS));
+
+    assertEquals(Arrays.asList(3, 4), seen);
+    assertEquals(2, processor.getDroppedCount());
+  }
+
+  @Test
+  public void dropNewest_keepsQueuedFixes() throws Exception {
+    LocationProcessor processor = new LocationProcessor(2, LocationProcessor.QueuePolicy.DROP_NEWEST);
+    List<Integer> seen = Collections.synchronizedList(new ArrayList<Integer>());
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    processor.submit(blocker(started, release));
+    assertTrue(started.await(2, TimeUnit.SECONDS));
+    for (int i = 1; i <= 4; i++) {
+      processor.submit(recorder(seen, i));
+    }
+    release.countDown();
+    processor.shutdown();
+    assertTrue(processor.awaitTermination(2, TimeUnit.SECONDS));
+
+    assertEquals(Arrays.asList(1, 2), seen);
+    assertEquals(2, processor.getDroppedCount());
+  }
+
+  private static Runnable fix(
+    final CoverageAggregator aggregator,
+    final double latitude,
+    final double longitude,
+    final long time
+  ) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        aggregator.add(latitude, longitude, time);
+      }
+    };
+  }
+
+  @Test
+  public void barrier_endsCoverageSessionAfterQueuedFixes() throws Exception {
+    LocationProcessor processor = new LocationProcessor(4, LocationProcessor.QueuePolicy.DROP_OLDEST);
+    final CoverageAggregator aggregator = new CoverageAggregator(16);
+    long home = CoverageAggregator.toQuadKey(45.0, 9.0, 16);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    processor.submit(blocker(started, release));
+    assertTrue(started.await(2, TimeUnit.SECONDS));
+
+    // A fix still queued when the service is stopped, then the stop
+    processor.submit(fix(aggregator, 45.0, 9.0, 0));
+    processor.submit(fix(aggregator, 45.0, 9.0, 1000));
+    processor.submitBarrier(
+      new Runnable() {
+        @Override
+        public void run() {
+          aggregator.endSession();
+        }
+      }
+    );
+    // First fix after the next start
+    processor.submit(fix(aggregator, 45.0, 9.0, 3600000));
+
+    release.countDown();
+    processor.shutdown();
+    assertTrue(processor.awaitTermination(2, TimeUnit.SECONDS));
+
+    CoverageAggregator.CellMap cells = aggregator.snapshot(16);
+    assertEquals(2, cells.visitsAt(cells.indexOf(home)));
+    assertEquals(1000, cells.dwellAt(cells.indexOf(home)));
+  }
+
+  @Test
+  public void barrier_isNeverDropped() throws Exception {
+    for (LocationProcessor.QueuePolicy policy : LocationProcessor.QueuePolicy.values()) {
+      LocationProcessor processor = new LocationProcessor(2, policy);
+      List<Integer> seen = Collections.synchronizedList(new ArrayList<Integer>());
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+
+      processor.submit(blocker(started, release));
+      assertTrue(started.await(2, TimeUnit.SECONDS));
+      processor.submit(recorder(seen, 1));
+      processor.submit(recorder(seen, 2));
+      // Queue full: the oldest fix makes room for the barrier
+      processor.submitBarrier(recorder(seen, 0));
+      if (policy != LocationProcessor.QueuePolicy.CALLER_RUNS) {
+        // Queue full again: an overflowing fix never pushes the barrier out
+        processor.submit(recorder(seen, 3));
+      }
+
+      release.countDown();
+      processor.shutdown();
+      assertTrue(processor.awaitTermination(2, TimeUnit.SECONDS));
+
+      assertTrue(policy + ": " + seen, seen.contains(0));
+      assertFalse(policy + ": " + seen, seen.contains(1));
+    }
+  }
+
+  @Test
+  public void queuePolicy_fromString() {
+    assertEquals(
+      LocationProcessor.QueuePolicy.CALLER_RUNS,
+      LocationProcessor.QueuePolicy.fromString("callerRuns", LocationProcessor.QueuePolicy.DROP_OLDEST)
+    );
+    assertEquals(
+      LocationProcessor.QueuePolicy.DROP_OLDEST,
+      LocationProcessor.QueuePolicy.fromString("unknown", LocationProcessor.QueuePolicy.DROP_OLDEST)
+    );
+  }
+}
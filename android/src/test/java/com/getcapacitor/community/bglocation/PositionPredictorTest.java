@@ -0,0 +1,94 @@
+package com.getcapacitor.community.bglocation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class PositionPredictorTest {
+
+  private static final double DELTA = 1e-6;
+
+  @Test
+  public void project_northAlongMeridian() {
+    // 1/360 of the earth circumference northwards is one degree of latitude
+    double[] position = PositionPredictor.project(0, 10, 0, 2 * Math.PI * PositionPredictor.EARTH_RADIUS / 360);
+
+    assertEquals(1.0, position[0], DELTA);
+    assertEquals(10.0, position[1], DELTA);
+  }
+
+  @Test
+  public void project_thenDistanceAndBearing_roundTrip() {
+    double[] position = PositionPredictor.project(45.0, 9.0, 60, 250);
+
+    assertEquals(250, PositionPredictor.distance(45.0, 9.0, position[0], position[1]), 1e-3);
+    assertEquals(60, PositionPredictor.bearing(45.0, 9.0, position[0], position[1]), 1e-3);
+  }
+
+  @Test
+  public void predict_fromSpeedAndBearing() {
+    PositionPredictor predictor = new PositionPredictor();
+    predictor.update(45.0, 9.0, 10f, 1000, true, 10f, true, 90f);
+
+    assertTrue(predictor.canPredict(6000, 20000));
+    double[] predicted = predictor.predict(6000);
+
+    assertEquals(50, PositionPredictor.distance(45.0, 9.0, predicted[0], predicted[1]), 1e-3);
+    assertEquals(15f, predicted[2], DELTA);
+  }
+
+  @Test
+  public void update_derivesMotionFromPreviousFix() {
+    PositionPredictor predictor = new PositionPredictor();
+    double[] next = PositionPredictor.project(45.0, 9.0, 180, 100);
+
+    predictor.update(45.0, 9.0, 5f, 0, false, 0f, false, 0f);
+    assertFalse(predictor.canPredict(1000, 20000));
+
+    predictor.update(next[0], next[1], 5f, 10000, false, 0f, false, 0f);
+    assertEquals(10f, predictor.speedAt(10000), 1e-3);
+    assertTrue(predictor.canPredict(11000, 20000));
+
+    double[] predicted = predictor.predict(20000);
+    assertEquals(180, PositionPredictor.bearing(next[0], next[1], predicted[0], predicted[1]), 1e-3);
+    assertEquals(100, PositionPredictor.distance(next[0], next[1], predicted[0], predicted[1]), 1e-3);
+  }
+
+  @Test
+  public void canPredict_stopsWhenStillOrStale() {
+    PositionPredictor predictor = new PositionPredictor();
+    predictor.update(45.0, 9.0, 5f, 0, true, 0.1f, true, 0f);
+    assertFalse(predictor.canPredict(1000, 20000));
+
+    predictor.update(45.0, 9.0, 5f, 0, true, 5f, true, 0f);
+    assertTrue(predictor.canPredict(20000, 20000));
+    assertFalse(predictor.canPredict(20001, 20000));
+  }
+
+  @Test
+  public void steps_overrideWalkingSpeed() {
+    PositionPredictor predictor = new PositionPredictor();
+    predictor.update(45.0, 9.0, 5f, 0, true, 1.2f, true, 0f);
+
+    // 8 steps in the 4 s window: 1.5 m/s
+    for (int i = 0; i < 8; i++) {
+      predictor.onStep(1000 + i * 500);
+    }
+    assertEquals(1.5f, predictor.speedAt(4600), 1e-3);
+
+    // No more steps: the user stopped walking
+    assertFalse(predictor.canPredict(20000, 30000));
+  }
+
+  @Test
+  public void steps_ignoredAboveWalkingSpeed() {
+    PositionPredictor predictor = new PositionPredictor();
+    predictor.update(45.0, 9.0, 5f, 0, true, 25f, true, 0f);
+
+    // A spurious step while driving
+    predictor.onStep(500);
+
+    assertEquals(25f, predictor.speedAt(1000), 1e-3);
+    assertTrue(predictor.canPredict(10000, 20000));
+  }
+}
@@ -13,6 +13,12 @@ export enum BgGeolocationAccuracy {
   NO_POWER = 105,
 }
 
+export enum BgProcessingQueuePolicy {
+  DROP_OLDEST = 'dropOldest',
+  DROP_NEWEST = 'dropNewest',
+  CALLER_RUNS = 'callerRuns',
+}
+
 export interface BgGeolocationOptions {
   /**
    * Sets the title for Foreground service notification
@@ -57,6 +63,55 @@ export interface BgGeolocationOptions {
    * @memberof BgGeolocationOptions
    */
   startImmediately?: boolean;
+  /**
+   * Sets how many location updates can wait to be processed (default 16).
+   *
+   * @type {number}
+   * @memberof BgGeolocationOptions
+   */
+  processingQueueSize?: number;
+  /**
+   * Sets what to do with location updates when the processing queue is full (default DROP_OLDEST).
+   *
+   * @type {BgProcessingQueuePolicy}
+   * @memberof BgGeolocationOptions
+   */
+  processingQueuePolicy?: BgProcessingQueuePolicy;
+  /**
+   * Enables coverage aggregation: each location is counted in the map tile (quadkey) it falls
+   * into at this zoom level (1-29). Tiles can be read back with getCoverageTiles().
+   *
+   * @type {number}
+   * @memberof BgGeolocationOptions
+   */
+  coverageZoom?: number;
+  /**
+   * Emits predicted locations (flagged as predicted) every predictionInterval milliseconds
+   * between real ones, projecting the last location along its bearing at its speed.
+   * Useful to keep a map smooth with a long updateInterval. 0 (the default) disables predictions.
+   *
+   * @type {number}
+   * @memberof BgGeolocationOptions
+   */
+  predictionInterval?: number;
+  /**
+   * Uses the step detector to estimate the speed of predicted locations (for walking users).
+   * On Android 10+ your app must hold the ACTIVITY_RECOGNITION permission.
+   *
+   * @type {boolean}
+   * @memberof BgGeolocationOptions
+   */
+  predictionStepHint?: boolean;
+}
+
+export interface BgCoverageOptions {
+  /**
+   * The zoom level of returned tiles, it cannot be higher than the configured coverageZoom (the default).
+   *
+   * @type {number}
+   * @memberof BgCoverageOptions
+   */
+  zoom?: number;
 }
 
 export interface BackgroundGeolocationPlugin extends WebPlugin {
@@ -109,6 +164,21 @@ export interface BackgroundGeolocationPlugin extends WebPlugin {
    * @memberof BackgroundGeolocationPlugin
    */
   stop(): Promise<void>;
+  /**
+   * Gets the tiles visited since coverage was enabled (or cleared), with visits count and dwell time.
+   *
+   * @param {BgCoverageOptions} [options]
+   * @returns {Promise<BgCoverageResult>}
+   * @memberof BackgroundGeolocationPlugin
+   */
+  getCoverageTiles(options?: BgCoverageOptions): Promise<BgCoverageResult>;
+  /**
+   * Clears the collected coverage tiles (e.g. after they have been uploaded).
+   *
+   * @returns {Promise<void>}
+   * @memberof BackgroundGeolocationPlugin
+   */
+  clearCoverageTiles(): Promise<void>;
 }
 
 
@@ -129,9 +199,29 @@ export interface BgLocationEvent {
 
   time: number;
   provider: string;
+
+  // True when this is a previously known location sent on start, before the first live one
+  cached?: boolean;
+  // True when this location is predicted from the previous real one (see predictionInterval)
+  predicted?: boolean;
 }
 
 export interface BgPermissions {
   foreground: boolean;
   fineLocation: boolean;
 }
+
+export interface BgCoverageTile {
+  quadkey: string;
+  zoom: number;
+  x: number;
+  y: number;
+
+  visits: number;
+  // Milliseconds
+  dwellTime: number;
+}
+
+export interface BgCoverageResult {
+  tiles: BgCoverageTile[];
+}
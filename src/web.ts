@@ -1,5 +1,5 @@
 import { WebPlugin, ListenerCallback, PluginListenerHandle } from '@capacitor/core';
-import { BackgroundGeolocationPlugin, BgGeolocationOptions, BgLocationEvent, BgGeolocationAccuracy, BgPermissions } from './definitions';
+import { BackgroundGeolocationPlugin, BgGeolocationOptions, BgLocationEvent, BgGeolocationAccuracy, BgPermissions, BgCoverageOptions, BgCoverageResult } from './definitions';
 
 export class BackgroundGeolocationWeb extends WebPlugin implements BackgroundGeolocationPlugin {
   constructor() {
@@ -56,7 +56,9 @@ export class BackgroundGeolocationWeb extends WebPlugin implements BackgroundGeo
           provider: "navigator",
           speed: pos.coords.speed,
           speedAccuracy: 0,
-          time: pos.timestamp
+          time: pos.timestamp,
+          cached: false,
+          predicted: false
         } as BgLocationEvent);
       }
     }, (err) => {
@@ -81,6 +83,16 @@ export class BackgroundGeolocationWeb extends WebPlugin implements BackgroundGeo
     return Promise.resolve();
   }
 
+  public getCoverageTiles(_options?: BgCoverageOptions): Promise<BgCoverageResult> {
+    // Coverage is aggregated natively only
+    return Promise.resolve({ tiles: [] });
+  }
+
+  public clearCoverageTiles(): Promise<void> {
+    // Nothing to do on web
+    return Promise.resolve();
+  }
+
   public addListener(eventName: string, listenerFunc: ListenerCallback): PluginListenerHandle {
 
     if (eventName.localeCompare('onLocation') === 0) {